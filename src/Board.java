@@ -0,0 +1,59 @@
+// immutable layout of one level, shared by every session playing it
+// cells are stored row by row with a border of walls added on every side, so
+// moves never need bounds checks
+public class Board{
+
+    private final int width; // width including the border
+    private final int height; // height including the border
+    private final String description; // description of the level
+    private final boolean[] walls; // cells the player can never enter
+    private final boolean[] goals; // cells boxes must be pushed onto
+    private final boolean[] boxes; // cells holding a box at the start
+    private final int start; // cell the player starts on
+    private final int boxLeft; // number of boxes not on goals at the start
+
+    // reads a level, the reader is only used while building the board
+    public Board(LevelReader reader, int level){
+        width = reader.getWidth(level) + 2;
+        height = reader.getHeight(level) + 2;
+        description = reader.getDescription(level);
+        walls = new boolean[width * height];
+        goals = new boolean[width * height];
+        boxes = new boolean[width * height];
+        int player = -1, left = 0;
+        for (int x = 0; x < width; x++)
+            for (int y = 0; y < height; y++){
+                int cell = y * width + x;
+                if (x == 0 || y == 0 || x == width - 1 || y == height - 1){
+                    walls[cell] = true;
+                    continue;
+                }
+                Contents c = reader.getTile(level, x - 1, y - 1);
+                walls[cell] = c == Contents.WALL;
+                goals[cell] = c == Contents.GOAL || c == Contents.BOXONGOAL ||
+                    c == Contents.PLAYERONGOAL;
+                boxes[cell] = c == Contents.BOX || c == Contents.BOXONGOAL;
+                if (c == Contents.PLAYER || c == Contents.PLAYERONGOAL)
+                    player = cell;
+                if (c == Contents.BOX) left++;
+            }
+        if (player < 0)
+            throw new IllegalArgumentException("Level " + level
+                + " has no player.");
+        start = player;
+        boxLeft = left;
+    }
+
+    public int getWidth(){ return width; }
+    public int getHeight(){ return height; }
+    public String getDescription(){ return description; }
+    public boolean isWall(int cell){ return walls[cell]; }
+    public boolean isGoal(int cell){ return goals[cell]; }
+    public int getStart(){ return start; }
+    public int getBoxLeft(){ return boxLeft; }
+
+    // returns a fresh copy of the starting boxes for a session to move
+    public boolean[] copyBoxes(){
+        return boxes.clone();
+    }
+}
@@ -0,0 +1,97 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// local load generator for SessionEngine
+// usage: java LoadTest levelFile [sessions] [moves per session]
+// every round sends one random move to each session and waits for all of
+// them, then reports sessions hosted, move latency and heap per session
+// NOTE: each round is sent in one burst from a single thread, so the latency
+// from send to handled mostly measures queueing behind that burst, not the
+// time the engine spends on a single move
+public class LoadTest implements Session.Listener{
+
+    private final long[] latencies; // nanoseconds from send to handled
+    private final AtomicInteger recorded; // latencies filled in so far
+    private volatile CountDownLatch round; // moves left in this round
+
+    private LoadTest(int moves){
+        latencies = new long[moves];
+        recorded = new AtomicInteger();
+    }
+
+    public void handled(Session session, Session.Move move, boolean changed,
+        long queued){
+        latencies[recorded.getAndIncrement()] = System.nanoTime() - queued;
+        round.countDown();
+    }
+
+    // heap in use after asking for a full collection
+    private static long usedHeap(){
+        Runtime runtime = Runtime.getRuntime();
+        for (int x = 0; x < 3; x++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static String micros(long nanos){
+        return String.format("%.1f us", nanos / 1000.0);
+    }
+
+    public static void main(String[] args) throws Exception{
+        int count = 0, moves = 0;
+        try{
+            if (args.length > 0){
+                count = (args.length > 1) ? Integer.parseInt(args[1]) : 10000;
+                moves = (args.length > 2) ? Integer.parseInt(args[2]) : 100;
+            }
+        }
+        catch (NumberFormatException e){}
+        // every move's latency is kept, so the total must fit in one array
+        if (count < 1 || moves < 1 || (long)count * moves > Integer.MAX_VALUE){
+            System.out.println("usage: java LoadTest levelFile [sessions] "
+                + "[moves per session], both at least 1");
+            return;
+        }
+        SessionEngine engine = new SessionEngine(args[0]);
+        LoadTest test = new LoadTest(count * moves);
+        Session.Move[] directions = {Session.Move.LEFT, Session.Move.UP,
+            Session.Move.RIGHT, Session.Move.DOWN};
+
+        // sessions are spread across levels, so many of them share a board
+        for (int x = 0; x < engine.getLevels(); x++) engine.getBoard(x);
+        long before = usedHeap();
+        Session[] sessions = new Session[count];
+        for (int x = 0; x < count; x++)
+            sessions[x] = engine.open(x % engine.getLevels(), test);
+        long heap = (usedHeap() - before) / count;
+
+        Random random = new Random(109);
+        long start = System.nanoTime();
+        for (int m = 0; m < moves; m++){
+            test.round = new CountDownLatch(count);
+            for (Session session : sessions)
+                session.send(directions[random.nextInt(4)]);
+            test.round.await();
+        }
+        long elapsed = System.nanoTime() - start;
+        engine.shutdown();
+
+        long[] sorted = test.latencies;
+        Arrays.sort(sorted);
+        long maxHeap = Runtime.getRuntime().maxMemory();
+        System.out.println("sessions:         " + count + " on "
+            + engine.getLevels() + " shared boards, "
+            + Runtime.getRuntime().availableProcessors() + " cores");
+        System.out.println("moves:            " + sorted.length + " in "
+            + elapsed / 1000000 + " ms (" + (long)(sorted.length * 1e9
+            / elapsed) + " moves/s)");
+        System.out.println("burst latency:    p50 "
+            + micros(sorted[sorted.length / 2]) + ", p99 "
+            + micros(sorted[(int)(sorted.length * 0.99)]) + ", max "
+            + micros(sorted[sorted.length - 1])
+            + " (send to handled, mostly queueing behind each round's burst)");
+        System.out.println("heap per session: " + heap + " bytes");
+        System.out.println("sessions per node: ~" + ((heap > 0) ? maxHeap
+            / heap : 0) + " by heap (" + maxHeap / 1048576 + " MB max heap)");
+    }
+}
@@ -0,0 +1,224 @@
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// one player's game, run as an actor: commands are queued in a lock-free
+// mailbox and handled one at a time on the engine's shared executor, so the
+// state below is only ever touched by a single thread at once
+public class Session{
+
+    // commands a session understands, the same as the keys of the Swing game
+    public enum Move{
+        LEFT(-1, 0), UP(0, -1), RIGHT(1, 0), DOWN(0, 1), UNDO(0, 0), NEXT(0, 0),
+        RESTART(0, 0);
+
+        private final int dx, dy;
+
+        private Move(int dx, int dy){
+            this.dx = dx;
+            this.dy = dy;
+        }
+    }
+
+    // told about every command once it has been handled, on the session's own
+    // thread, so the game state getters below may be read from here
+    public interface Listener{
+        void handled(Session session, Move move, boolean changed, long queued);
+    }
+
+    // a queued command with the time it was sent, for latency reporting
+    private static class Command{
+        private final Move move;
+        private final long queued;
+
+        private Command(Move move, long queued){
+            this.move = move;
+            this.queued = queued;
+        }
+    }
+
+    private static final int BATCH = 64; // commands run before yielding
+
+    private final long id; // session id given by the engine
+    private final SessionEngine engine; // supplies the board of each level
+    private final Executor executor; // runs the session when it has mail
+    private final Listener listener; // may be null
+    private final ConcurrentLinkedQueue<Command> mailbox;
+    private final AtomicBoolean scheduled; // if queued on the executor
+    private final Runnable drain; // handed to the executor, never exposed
+
+    private int level; // current level
+    private Board board; // level layout shared with other sessions
+    private boolean[] boxes; // cells holding a box
+    private int player; // cell of the player
+    private int steps; // moves made
+    private int boxLeft; // number of boxes not on goals
+    private boolean undoReady; // if the last move can be undone
+    private int undoPlayer; // cell the player moved from
+    private int undoBox; // cell a box was pushed to, -1 without a push
+    private volatile boolean finished; // if the last level is solved
+    private volatile boolean closed; // if the engine has closed the session
+
+    Session(long id, SessionEngine engine, int level, Executor executor,
+        Listener listener){
+        this.id = id;
+        this.engine = engine;
+        this.executor = executor;
+        this.listener = listener;
+        mailbox = new ConcurrentLinkedQueue<>();
+        scheduled = new AtomicBoolean();
+        // only the executor may drain the mailbox, so this is not a public
+        // run method anyone could call alongside a pool thread
+        drain = new Runnable(){
+            public void run(){
+                drain();
+            }
+        };
+        startLevel(level);
+    }
+
+    public long getId(){ return id; }
+    public boolean isFinished(){ return finished; }
+
+    // game state, only safe to read from within Listener.handled
+    public int getLevel(){ return level; }
+    public Board getBoard(){ return board; }
+    public int getPlayer(){ return player; }
+    public int getSteps(){ return steps; }
+    public int getBoxLeft(){ return boxLeft; }
+    public boolean hasBox(int cell){ return boxes[cell]; }
+
+    // queues a move, safe to call from any thread, closed sessions ignore it
+    public void send(Move move){
+        if (closed) return;
+        mailbox.offer(new Command(move, System.nanoTime()));
+        if (scheduled.compareAndSet(false, true)) schedule();
+    }
+
+    // drains the mailbox, handing the thread back after BATCH commands so
+    // busy sessions cannot starve the rest
+    private void drain(){
+        try{
+            Command c;
+            for (int n = 0; n < BATCH && (c = mailbox.poll()) != null; n++){
+                if (closed){
+                    mailbox.clear();
+                    return;
+                }
+                boolean changed = handle(c.move);
+                if (listener != null)
+                    try{
+                        listener.handled(this, c.move, changed, c.queued);
+                    }
+                    catch (RuntimeException e){
+                        // a failing listener must not stop the session
+                        System.err.println("Listener failed in session " + id
+                            + ": " + e);
+                    }
+            }
+        }
+        finally{
+            // always runs, or a failed move would leave the session
+            // scheduled forever and later moves would never be handled
+            scheduled.set(false);
+            // mail sent after the last poll but before the flag was cleared
+            if (!mailbox.isEmpty() && scheduled.compareAndSet(false, true))
+                schedule();
+        }
+    }
+
+    // hands the mailbox to the executor, if the engine has been shut down in
+    // the meantime the session is closed like the others
+    private void schedule(){
+        try{
+            executor.execute(drain);
+        }
+        catch (RejectedExecutionException e){
+            closed = true;
+            mailbox.clear();
+            scheduled.set(false);
+        }
+    }
+
+    // stops the session handling moves, already queued ones are dropped
+    void close(){
+        closed = true;
+    }
+
+    // applies a command with the same rules as the Swing game: one move can
+    // be undone, and solving a level starts the next one until the last
+    // NOTE: Sokoban keeps its own copy of these rules on its Contents grid,
+    // in KeyTracker, undoSetup, eventUndo and eventCheck, so a rule changed
+    // here must be changed there too (and the other way round)
+    private boolean handle(Move move){
+        switch (move){
+            case RESTART:
+                startLevel(level);
+                return true;
+            case NEXT:
+                if (level == engine.getLevels() - 1) return false;
+                startLevel(level + 1);
+                return true;
+            case UNDO:
+                if (!undoReady) return false;
+                undo();
+                return true;
+            default:
+                return step(move);
+        }
+    }
+
+    // moves the player, pushing a box if there is one in the way
+    private boolean step(Move move){
+        if (finished) return false;
+        int delta = move.dx + move.dy * board.getWidth();
+        int to = player + delta;
+        if (board.isWall(to)) return false;
+        int push = -1;
+        if (boxes[to]){
+            push = to + delta;
+            if (board.isWall(push) || boxes[push]) return false;
+            boxes[to] = false;
+            boxes[push] = true;
+            if (board.isGoal(to)) boxLeft++;
+            if (board.isGoal(push)) boxLeft--;
+        }
+        // like undoSetup, the undo record only changes once a move succeeds
+        undoBox = push;
+        undoPlayer = player;
+        undoReady = true;
+        player = to;
+        steps++;
+        if (boxLeft == 0){
+            if (level == engine.getLevels() - 1){
+                finished = true;
+                undoReady = false;
+            }
+            else startLevel(level + 1);
+        }
+        return true;
+    }
+
+    // puts the player and any pushed box back where they were
+    private void undo(){
+        if (undoBox >= 0){
+            boxes[undoBox] = false;
+            boxes[player] = true;
+            if (board.isGoal(undoBox)) boxLeft++;
+            if (board.isGoal(player)) boxLeft--;
+        }
+        player = undoPlayer;
+        steps--;
+        undoReady = false;
+    }
+
+    private void startLevel(int level){
+        this.level = level;
+        board = engine.getBoard(level);
+        boxes = board.copyBoxes();
+        player = board.getStart();
+        steps = 0;
+        boxLeft = board.getBoxLeft();
+        undoReady = false;
+        finished = false;
+    }
+}
@@ -0,0 +1,69 @@
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// headless host for many concurrent games, every session is an actor and all
+// of them share one executor sized to the machine, and sessions playing the
+// same level share its Board
+public class SessionEngine{
+
+    private final LevelReader reader; // reads level info
+    private final int levels; // number of levels loaded
+    private final ExecutorService executor; // runs sessions with queued moves
+    private final ConcurrentHashMap<Integer, Board> boards; // built on demand
+    private final ConcurrentHashMap<Long, Session> sessions; // open sessions
+    private final AtomicLong ids; // next session id
+
+    public SessionEngine(String fileName) throws IOException{
+        if (!new File(fileName).isFile())
+            throw new FileNotFoundException(fileName);
+        reader = new LevelReader();
+        levels = reader.readLevels(fileName);
+        // async mode suits actors, which are only ever forked, never joined
+        executor = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+            ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        boards = new ConcurrentHashMap<>();
+        sessions = new ConcurrentHashMap<>();
+        ids = new AtomicLong();
+    }
+
+    public int getLevels(){ return levels; }
+    public int getSessions(){ return sessions.size(); }
+    public Session getSession(long id){ return sessions.get(id); }
+
+    // returns the shared board of a level, building it on first use
+    public Board getBoard(int level){
+        if (level < 0 || level >= levels)
+            throw new IllegalArgumentException("No level " + level + ".");
+        Board board = boards.get(level);
+        if (board == null){
+            // LevelReader is only read here, so racing builders are harmless
+            Board built = new Board(reader, level);
+            board = boards.putIfAbsent(level, built);
+            if (board == null) board = built;
+        }
+        return board;
+    }
+
+    // starts a new session on the given level
+    public Session open(int level, Session.Listener listener){
+        Session session = new Session(ids.incrementAndGet(), this, level,
+            executor, listener);
+        sessions.put(session.getId(), session);
+        return session;
+    }
+
+    // forgets a session, it stops handling moves including queued ones
+    public void close(Session session){
+        session.close();
+        sessions.remove(session.getId());
+    }
+
+    // closes every session, so later moves are ignored rather than rejected,
+    // then stops the executor once running moves have finished
+    public void shutdown() throws InterruptedException{
+        for (Session session : sessions.values()) close(session);
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+}
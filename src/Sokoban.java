@@ -4,9 +4,7 @@ import java.awt.geom.*;
 import java.awt.event.*;
 import java.util.*;
 
-import java.util.zip.*;
 import java.awt.image.*;
-import javax.imageio.*;
 import java.io.*;
 
 
@@ -27,7 +25,7 @@ public class Sokoban extends JFrame{
     private boolean isReady; // stops repaint till constructor finishes
     private ActionCall action; // calls ActionCall for user interaction
     private Object call; // holds object that calls ActionCall
-    private BufferedImage[] sprites; // holds any user supplied tile images
+    private SpritePack sprites; // holds any user supplied tile images
     private boolean imgRender; // determines if image tiles were used
     
     // level file variables
@@ -155,23 +153,22 @@ public class Sokoban extends JFrame{
             }
         }
         
-        // selects which tile paintComponent should draw next
+        // selects which tile paintComponent should draw next, only the player
+        // is animated, advancing one frame per step taken
         private BufferedImage chooseTile(Contents c){
             switch (c){
                 case WALL:
-                    return sprites[1];
                 case BOX:
-                    return sprites[2];
                 case BOXONGOAL:
-                    return sprites[3];
                 case GOAL:
-                    return sprites[4];
+                    return sprites.getFrame(c.name(), 0);
                 case PLAYER:
-                    return sprites[(moveX != 0) ? 6 + moveX : 7 + moveY];
                 case PLAYERONGOAL:
-                    return sprites[(moveX != 0) ? 10 + moveX : 11 + moveY];
+                    return sprites.getFrame(c.name() + ((moveX < 0) ? ".LEFT" :
+                        (moveY < 0) ? ".UP" : (moveY > 0) ? ".DOWN" : ".RIGHT"),
+                        counter);
                 default:
-                    return sprites[0];
+                    return sprites.getFrame("EMPTY", 0);
             }
             
         }
@@ -199,6 +196,8 @@ public class Sokoban extends JFrame{
     }
     
     // class for monitoring key presses
+    // NOTE: Session applies the same move, undo and level rules for headless
+    // games, keep the two in step when changing either
     private class KeyTracker implements KeyListener{
         
         private int key;
@@ -402,15 +401,9 @@ public class Sokoban extends JFrame{
         width = reader.getWidth(current);
         height = reader.getHeight(current);
         desc = reader.getDescription(current);
-        window = new Dimension(width * tile, height * tile);
-        container.setPreferredSize(window);
         setTitle("SOKOBAN Level: " + desc);
         add(container, BorderLayout.CENTER);
-        setLocation((screen.width - Math.max(240, window.width)) / 2,
-            (screen.height - window.height - 59) / 2);
-        pack();
-        // padding added to levels smaller than window width
-        pad = (container.getWidth() - window.width) / 2;
+        layoutLevel();
         container.setEnabled(true);
         container.requestFocus();
         undoReady = false;
@@ -435,23 +428,29 @@ public class Sokoban extends JFrame{
         timerthread.start();
     }
     
+    // sizes and centers the window to fit the current level at the tile size
+    private void layoutLevel(){
+        window = new Dimension(width * tile, height * tile);
+        container.setPreferredSize(window);
+        setLocation((screen.width - Math.max(240, window.width)) / 2,
+            (screen.height - window.height - 59) / 2);
+        pack();
+        // padding added to levels smaller than window width
+        pad = (container.getWidth() - window.width) / 2;
+    }
+    
     // allows user to select a zip file with tile images and parses files into
     // image objects
     private void loadBox(){
         JFileChooser file = new JFileChooser();
         file.showOpenDialog(this);
         try{
-            ZipFile zip = new ZipFile(file.getSelectedFile().getAbsolutePath());
-            sprites = new BufferedImage[13];
-            BufferedInputStream input = null;
-            for (int x = 0; x < 13; x++){
-                input = new BufferedInputStream(zip.getInputStream(zip.getEntry
-                    (x + ".png")));
-                sprites[x] = ImageIO.read(input);
-            }
-            zip.close();
-            input.close();
+            sprites = SpritePack.load(file.getSelectedFile().getAbsolutePath());
             imgRender = true;
+            // the board takes the tile size of the pack, so images are drawn
+            // without scaling
+            tile = sprites.getSize();
+            if (isReady) layoutLevel();
             repaint();
         }
         catch (IOException e){
@@ -486,6 +485,7 @@ public class Sokoban extends JFrame{
     }
     
     // when user calls undo, puts tiles to previous state
+    // NOTE: mirrored by Session.undo
     private void eventUndo(){
         grid[undoMoves[0][0]][undoMoves[0][1]] = undoTiles[0];
         player = undoMoves[0];
@@ -506,6 +506,7 @@ public class Sokoban extends JFrame{
     
     // checks if all boxes are on goals and restarts current level or starts
     // new level
+    // NOTE: mirrored by the end of Session.step
     private void eventCheck(){
         if (boxLeft == 0){
             timerthread.terminate();
@@ -0,0 +1,288 @@
+import java.awt.*;
+import java.awt.image.*;
+import javax.imageio.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+// a set of tile images loaded from a zip file
+// the zip may hold a manifest (sprites.properties) mapping each tile to one or
+// more image files, e.g.
+//     size=30
+//     WALL=wall.png
+//     PLAYER.LEFT=left0.png,left1.png
+// images are scaled once to size, which the game then uses as its tile size
+// several images for a player tile are frames of a walking animation, the
+// game shows the next one each step, other tiles only use their first image
+// zips without a manifest use the original layout of 0.png to 12.png at 30
+public class SpritePack{
+
+    private static final String MANIFEST = "sprites.properties";
+    private static final int MAGIC = 0x53505231; // marks a disk cache file
+    private static final int SIZE = 30; // tile size when none is given
+    private static final int MAX_SIZE = 256; // largest tile size allowed
+
+    // every tile the game draws, player tiles have one per facing direction
+    private static final String[] KEYS = {"EMPTY", "WALL", "BOX", "BOXONGOAL",
+        "GOAL", "PLAYER.LEFT", "PLAYER.UP", "PLAYER.RIGHT", "PLAYER.DOWN",
+        "PLAYERONGOAL.LEFT", "PLAYERONGOAL.UP", "PLAYERONGOAL.RIGHT",
+        "PLAYERONGOAL.DOWN"};
+
+    // packs already decoded during this run, keyed by zip content hash
+    private static final Map<String, SpritePack> loaded =
+        new ConcurrentHashMap<>();
+
+    private final int size; // tile size in pixels
+    private final Map<String, BufferedImage[]> frames; // animation per tile
+
+    private SpritePack(int size, Map<String, BufferedImage[]> frames){
+        this.size = size;
+        this.frames = frames;
+    }
+
+    public int getSize(){
+        return size;
+    }
+
+    // returns the image of a tile for the given animation step
+    public BufferedImage getFrame(String key, int step){
+        BufferedImage[] images = frames.get(key);
+        return images[Math.abs(step % images.length)];
+    }
+
+    // loads a pack from memory, the disk cache or by decoding the zip
+    public static SpritePack load(String zipName) throws IOException{
+        Path zip = Paths.get(zipName);
+        String hash = hash(zip);
+        SpritePack pack = loaded.get(hash);
+        if (pack != null) return pack;
+        Path cached = cacheDir().resolve(hash + ".spr");
+        try{
+            if (Files.isRegularFile(cached)) pack = readCache(cached);
+        }
+        catch (IOException e){} // a bad cache file is decoded again
+        if (pack == null){
+            pack = decode(zip);
+            try{
+                writeCache(pack, cached);
+            }
+            catch (IOException e){} // the disk cache is optional
+        }
+        loaded.put(hash, pack);
+        return pack;
+    }
+
+    // hashes the zip contents so edited packs are never served from cache
+    private static String hash(Path zip) throws IOException{
+        MessageDigest digest;
+        try{
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e){
+            throw new IOException(e);
+        }
+        byte[] buffer = new byte[8192];
+        try (InputStream input = Files.newInputStream(zip)){
+            for (int n; (n = input.read(buffer)) > 0; )
+                digest.update(buffer, 0, n);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest())
+            hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+
+    private static Path cacheDir(){
+        return Paths.get(System.getProperty("user.home"), ".sokoban",
+            "sprites");
+    }
+
+    // reads the manifest, or builds the original numbered layout without one
+    private static Properties manifest(FileSystem fs) throws IOException{
+        Properties manifest = new Properties();
+        Path path = fs.getPath(MANIFEST);
+        if (Files.exists(path))
+            try (InputStream input = Files.newInputStream(path)){
+                manifest.load(input);
+            }
+        else
+            for (int x = 0; x < KEYS.length; x++)
+                manifest.setProperty(KEYS[x], x + ".png");
+        return manifest;
+    }
+
+    // opens the zip as a file system and decodes the pack inside it
+    private static SpritePack decode(Path zip) throws IOException{
+        // a file that is not a zip fails with unchecked exceptions, which are
+        // reported like any other unreadable pack
+        try (FileSystem fs = FileSystems.newFileSystem(zip,
+            (ClassLoader)null)){
+            return decode(fs);
+        }
+        catch (ProviderNotFoundException | ZipError |
+            UnsupportedOperationException e){
+            throw new IOException("Not a zip file " + zip, e);
+        }
+    }
+
+    // decodes every image named by the manifest in parallel
+    private static SpritePack decode(FileSystem fs) throws IOException{
+        Properties manifest = manifest(fs);
+        int size;
+        try{
+            size = Integer.parseInt(manifest.getProperty("size", "" + SIZE)
+                .trim());
+        }
+        catch (NumberFormatException e){
+            size = 0;
+        }
+        if (size <= 0 || size > MAX_SIZE)
+            throw new IOException("Invalid size in " + MANIFEST);
+        // images shared between tiles or frames are decoded only once
+        Map<String, String[]> names = new HashMap<>();
+        Map<String, Future<BufferedImage>> images = new HashMap<>();
+        ExecutorService pool = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors());
+        try{
+            for (String key : KEYS){
+                String value = manifest.getProperty(key);
+                if (value == null)
+                    throw new IOException("No image for " + key + " in "
+                        + MANIFEST);
+                String[] files = value.split(",");
+                for (int x = 0; x < files.length; x++){
+                    files[x] = files[x].trim();
+                    if (!images.containsKey(files[x]))
+                        images.put(files[x], pool.submit(
+                            decodeTask(fs.getPath(files[x]), size)));
+                }
+                names.put(key, files);
+            }
+            Map<String, BufferedImage[]> frames = new HashMap<>();
+            for (String key : KEYS){
+                String[] files = names.get(key);
+                BufferedImage[] list = new BufferedImage[files.length];
+                for (int x = 0; x < files.length; x++)
+                    list[x] = images.get(files[x]).get();
+                frames.put(key, list);
+            }
+            return new SpritePack(size, frames);
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        catch (ExecutionException e){
+            if (e.getCause() instanceof IOException)
+                throw (IOException)e.getCause();
+            throw new IOException(e.getCause());
+        }
+        finally{
+            pool.shutdownNow();
+        }
+    }
+
+    // decodes one image into ARGB pixels scaled to size
+    private static Callable<BufferedImage> decodeTask(final Path path,
+        final int size){
+        return new Callable<BufferedImage>(){
+            public BufferedImage call() throws IOException{
+                BufferedImage read;
+                try (InputStream input = new BufferedInputStream(
+                    Files.newInputStream(path))){
+                    read = ImageIO.read(input);
+                }
+                catch (NoSuchFileException e){
+                    throw new IOException("Missing image " + path);
+                }
+                if (read == null)
+                    throw new IOException("Unreadable image " + path);
+                BufferedImage image = new BufferedImage(size, size,
+                    BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g = image.createGraphics();
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(read, 0, 0, size, size, null);
+                g.dispose();
+                return image;
+            }
+        };
+    }
+
+    // writes raw pixels so later runs skip PNG decoding entirely
+    private static void writeCache(SpritePack pack, Path cached)
+        throws IOException{
+        Files.createDirectories(cached.getParent());
+        Path temp = Files.createTempFile(cached.getParent(), "pack", ".tmp");
+        try{
+            try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp)))){
+                output.writeInt(MAGIC);
+                output.writeInt(pack.size);
+                for (String key : KEYS){
+                    BufferedImage[] images = pack.frames.get(key);
+                    output.writeInt(images.length);
+                    for (BufferedImage image : images){
+                        int[] pixels = pixels(image);
+                        output.writeInt(image.getWidth());
+                        output.writeInt(image.getHeight());
+                        ByteBuffer bytes = ByteBuffer.allocate(pixels.length
+                            * 4);
+                        bytes.asIntBuffer().put(pixels);
+                        output.write(bytes.array());
+                    }
+                }
+            }
+            Files.move(temp, cached, StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally{
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // reads a pack written by writeCache
+    private static SpritePack readCache(Path cached) throws IOException{
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(cached));
+        try{
+            if (bytes.getInt() != MAGIC)
+                throw new IOException("Not a sprite cache " + cached);
+            int size = bytes.getInt();
+            if (size <= 0 || size > MAX_SIZE)
+                throw new IOException("Corrupt sprite cache " + cached);
+            Map<String, BufferedImage[]> frames = new HashMap<>();
+            for (String key : KEYS){
+                // every frame needs at least its 8 byte header, and pixels
+                // must fit in what is left, checked before allocating
+                int count = bytes.getInt();
+                if (count <= 0 || count > bytes.remaining() / 8)
+                    throw new IOException("Corrupt sprite cache " + cached);
+                BufferedImage[] images = new BufferedImage[count];
+                for (int x = 0; x < images.length; x++){
+                    int w = bytes.getInt(), h = bytes.getInt();
+                    if (w != size || h != size || w * h * 4 > bytes.remaining())
+                        throw new IOException("Corrupt sprite cache " + cached);
+                    BufferedImage image = new BufferedImage(w, h,
+                        BufferedImage.TYPE_INT_ARGB);
+                    int[] pixels = pixels(image);
+                    bytes.asIntBuffer().get(pixels);
+                    bytes.position(bytes.position() + pixels.length * 4);
+                    images[x] = image;
+                }
+                frames.put(key, images);
+            }
+            return new SpritePack(size, frames);
+        }
+        catch (BufferUnderflowException e){
+            throw new IOException("Corrupt sprite cache " + cached);
+        }
+    }
+
+    // backing pixel array of an ARGB image
+    private static int[] pixels(BufferedImage image){
+        return ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+    }
+}
@@ -0,0 +1,82 @@
+import java.io.*;
+import java.util.concurrent.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+// checks Session against the rules of the Swing game
+public class SessionTest{
+
+    private File levelFile;
+    private SessionEngine engine;
+
+    // state read on the session's thread after the last command
+    private volatile int player, boxLeft, steps;
+    private volatile boolean[] boxes;
+
+    @Before
+    public void setUp() throws IOException{
+        levelFile = File.createTempFile("levels", ".txt");
+        try (PrintWriter out = new PrintWriter(new FileWriter(levelFile))){
+            out.println("; 1");
+            out.println("#######");
+            out.println("#@$ . #");
+            out.println("# $   #");
+            out.println("#######");
+        }
+        engine = new SessionEngine(levelFile.getPath());
+    }
+
+    @After
+    public void tearDown() throws InterruptedException{
+        engine.shutdown();
+        levelFile.delete();
+    }
+
+    // sends the moves and waits until all of them are handled
+    private void play(Session.Move... moves) throws InterruptedException{
+        final CountDownLatch done = new CountDownLatch(moves.length);
+        Session session = engine.open(0, new Session.Listener(){
+            public void handled(Session session, Session.Move move,
+                boolean changed, long queued){
+                player = session.getPlayer();
+                boxLeft = session.getBoxLeft();
+                steps = session.getSteps();
+                boolean[] copy = new boolean[session.getBoard().getWidth()
+                    * session.getBoard().getHeight()];
+                for (int x = 0; x < copy.length; x++)
+                    copy[x] = session.hasBox(x);
+                boxes = copy;
+                done.countDown();
+            }
+        });
+        for (Session.Move move : moves) session.send(move);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    // cell index of a level position, the board adds a border of walls
+    private int cell(int x, int y){
+        return (y + 1) * engine.getBoard(0).getWidth() + x + 1;
+    }
+
+    @Test
+    public void undoRevertsPush() throws InterruptedException{
+        play(Session.Move.RIGHT, Session.Move.RIGHT, Session.Move.UNDO);
+        assertEquals(cell(2, 1), player);
+        assertTrue(boxes[cell(3, 1)]);
+        assertFalse(boxes[cell(4, 1)]);
+        assertEquals(2, boxLeft);
+        assertEquals(1, steps);
+    }
+
+    @Test
+    public void blockedPushKeepsUndo() throws InterruptedException{
+        Session.Move r = Session.Move.RIGHT;
+        // onto the goal, off it again, then blocked by the wall
+        play(r, r, r, r, Session.Move.UNDO);
+        assertEquals(cell(3, 1), player);
+        assertTrue(boxes[cell(4, 1)]);
+        assertFalse(boxes[cell(5, 1)]);
+        assertEquals(1, boxLeft);
+        assertEquals(2, steps);
+    }
+}